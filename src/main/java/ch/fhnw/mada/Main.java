@@ -1,13 +1,15 @@
 package ch.fhnw.mada;
 
+import ch.fhnw.mada.cli.Append;
 import ch.fhnw.mada.cli.Decode;
 import ch.fhnw.mada.cli.Encode;
 import ch.fhnw.mada.cli.EntryPoint;
+import ch.fhnw.mada.cli.Train;
 
 public class Main {
     public static void main(String[] args) {
         EntryPoint entryPoint = new EntryPoint(System.out);
-        entryPoint.register(new Decode(), new Encode());
+        entryPoint.register(new Decode(), new Encode(), new Append(), new Train());
         entryPoint.run(args.length > 0 ? args[0] : "", args);
     }
 }
@@ -0,0 +1,64 @@
+package ch.fhnw.mada.cli;
+
+import ch.fhnw.mada.cli.command.Command;
+import ch.fhnw.mada.cli.command.Option;
+import ch.fhnw.mada.huffman.Encoder;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+
+public class Append extends Command {
+    @Option(displayName = "INPUT_FILE", flagName = "i")
+    String inputFile;
+    @Option(displayName = "TABLE_INPUT_FILE", flagName = "t")
+    String tableInput;
+    @Option(displayName = "DATA_FILE", flagName = "o")
+    String dataFile;
+    @Option(displayName = "MODE", flagName = "m", required = false)
+    String mode;
+
+    @Override
+    public void run(PrintStream output) {
+        var inputFilePath = Path.of(inputFile);
+        var tableInputPath = Path.of(tableInput);
+        var dataFilePath = Path.of(dataFile);
+
+        if (!inputFilePath.toFile().exists()) {
+            output.println(inputFile + " does not exist!");
+            return;
+        }
+        if (!tableInputPath.toFile().exists()) {
+            output.println(tableInput + " does not exist!");
+            return;
+        }
+        if (!dataFilePath.toFile().exists()) {
+            output.println(dataFile + " does not exist!");
+            return;
+        }
+        if (mode != null && !mode.equals("order0") && !mode.equals("order1")) {
+            output.println(mode + " is not a valid mode!");
+            return;
+        }
+
+        output.println("... appending your file");
+
+        var encoder = new Encoder(
+            inputFilePath,
+            tableInputPath,
+            dataFilePath,
+            "order1".equals(mode)
+        );
+        encoder.append();
+
+        output.printf("...done!\ncompressed data appended to: %s\n", dataFilePath.toAbsolutePath());
+        output.println("initial size (bytes):" + encoder.getInitialSize());
+        output.println("appended size (bytes):" + encoder.getCompressedSize());
+    }
+
+    @Override
+    public void configure() {
+        super.setIcon("➕");
+        super.setName("append");
+        super.setDescription("append text to existing compressed data, keeps the existing table if it fits the new text");
+    }
+}
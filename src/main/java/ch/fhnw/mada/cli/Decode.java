@@ -3,25 +3,32 @@ package ch.fhnw.mada.cli;
 import ch.fhnw.mada.cli.command.Command;
 import ch.fhnw.mada.cli.command.Option;
 import ch.fhnw.mada.huffman.Decoder;
+import ch.fhnw.mada.huffman.DictionaryRegistry;
 
 import java.io.PrintStream;
 import java.nio.file.Path;
 
 public class Decode extends Command {
-    @Option(displayName = "TABLE_INPUT_FILE", flagName = "t")
-    private String tableInput;
+    @Option(displayName = "TABLE_INPUT_FILE", flagName = "t", required = false)
+    String tableInput;
     @Option(displayName = "COMPRESSED_INPUT_FILE", flagName = "i")
-    private String textInput;
+    String textInput;
     @Option(displayName = "OUTPUT_FILE", flagName = "o")
-    private String outputFile;
+    String outputFile;
+    @Option(displayName = "REGISTRY_DIR", flagName = "r", required = false)
+    String registry;
 
     @Override
     public void run(PrintStream output) {
-        var tableInputPath = Path.of(this.tableInput);
+        var tableInputPath = this.tableInput != null ? Path.of(this.tableInput) : null;
         var textInputPath = Path.of(this.textInput);
         var outputPath = Path.of(this.outputFile);
 
-        if (!tableInputPath.toFile().exists()) {
+        if (tableInputPath == null && this.registry == null) {
+            System.out.println("either a table (-t) or a dictionary registry (-r) is required!");
+            return;
+        }
+        if (tableInputPath != null && !tableInputPath.toFile().exists()) {
             System.out.println(tableInput + " does not exist!");
             return;
         }
@@ -35,7 +42,8 @@ public class Decode extends Command {
         var decoder = new Decoder(
             tableInputPath,
             textInputPath,
-            outputPath
+            outputPath,
+            this.registry != null ? DictionaryRegistry.open(Path.of(this.registry)) : null
         );
         decoder.decode();
 
@@ -46,6 +54,6 @@ public class Decode extends Command {
     public void configure() {
         super.setIcon("🪄");
         super.setName("decode");
-        super.setDescription("decode binary data using a huffman table");
+        super.setDescription("decode binary data using a huffman table or a dictionary from the registry");
     }
 }
@@ -2,6 +2,7 @@ package ch.fhnw.mada.cli;
 
 import ch.fhnw.mada.cli.command.Command;
 import ch.fhnw.mada.cli.command.Option;
+import ch.fhnw.mada.huffman.DictionaryRegistry;
 import ch.fhnw.mada.huffman.Encoder;
 
 import java.io.PrintStream;
@@ -9,37 +10,87 @@ import java.nio.file.Path;
 
 public class Encode extends Command {
     @Option(displayName = "INPUT_FILE", flagName = "i")
-    private String inputFile;
-    @Option(displayName = "TABLE_OUTPUT_FILE", flagName = "t")
-    private String tableOutput;
+    String inputFile;
+    @Option(displayName = "TABLE_OUTPUT_FILE", flagName = "t", required = false)
+    String tableOutput;
     @Option(displayName = "DATA_OUTPUT_FILE", flagName = "o")
-    private String dataOutput;
+    String dataOutput;
+    @Option(displayName = "MODE", flagName = "m", required = false)
+    String mode;
+    @Option(displayName = "DICTIONARY_ID", flagName = "d", required = false)
+    String dictionary;
+    @Option(displayName = "REGISTRY_DIR", flagName = "r", required = false)
+    String registry;
 
     @Override
     public void run(PrintStream output) {
         var inputFilePath = Path.of(inputFile);
-        var tableOutputPath = Path.of(tableOutput);
         var dataOutputPath = Path.of(dataOutput);
 
         if (!inputFilePath.toFile().exists()) {
             output.println(inputFile + " does not exist!");
             return;
         }
+        if (mode != null && !mode.equals("order0") && !mode.equals("order1")) {
+            output.println(mode + " is not a valid mode!");
+            return;
+        }
+
+        Encoder encoder;
+        if (dictionary != null) {
+            if (registry == null) {
+                output.println("a dictionary registry (-r) is required to use a dictionary!");
+                return;
+            }
+            if (!isDictionaryId(dictionary)) {
+                output.println(dictionary + " is not a valid dictionary id!");
+                return;
+            }
+            if ("order1".equals(mode)) {
+                output.println("mode order1 is not supported using a dictionary, dictionaries are order0 only!");
+                return;
+            }
+            if (tableOutput != null) {
+                output.println("a table output (-t) is not supported using a dictionary, no table is written!");
+                return;
+            }
+            var registryPath = Path.of(registry);
+            var dictionaryId = Integer.parseInt(dictionary);
+            var dictionaries = DictionaryRegistry.open(registryPath);
+            if (!dictionaries.contains(dictionaryId)) {
+                output.println("dictionary " + dictionaryId + " does not exist in " + registry + "!");
+                return;
+            }
+
+            output.println("... encoding your file using dictionary " + dictionaryId);
+
+            encoder = new Encoder(inputFilePath, dataOutputPath);
+            encoder.encode(dictionaries, dictionaryId);
 
-        output.println("... encoding your file");
+            output.printf("...done!\ncompressed data stored in: %s\n", dataOutputPath.toAbsolutePath());
+        } else {
+            if (tableOutput == null) {
+                output.println("either a table output (-t) or a dictionary (-d) is required!");
+                return;
+            }
+            var tableOutputPath = Path.of(tableOutput);
 
-        var encoder = new Encoder(
-            inputFilePath,
-            tableOutputPath,
-            dataOutputPath
-        );
-        encoder.encode();
+            output.println("... encoding your file");
 
-        output.printf(
-            "...done!\n table stored in: %s\ncompressed data stored in: %s\n",
-            tableOutputPath.toAbsolutePath(),
-            dataOutputPath.toAbsolutePath()
-        );
+            encoder = new Encoder(
+                inputFilePath,
+                tableOutputPath,
+                dataOutputPath,
+                "order1".equals(mode)
+            );
+            encoder.encode();
+
+            output.printf(
+                "...done!\n table stored in: %s\ncompressed data stored in: %s\n",
+                tableOutputPath.toAbsolutePath(),
+                dataOutputPath.toAbsolutePath()
+            );
+        }
 
         var compressed = encoder.getCompressedSize();
         var original = encoder.getInitialSize();
@@ -49,10 +100,18 @@ public class Encode extends Command {
         output.println("saved space (bytes):" + (original - compressed) + " ~ " + percentOfOriginal + "% of the original size");
     }
 
+    static boolean isDictionaryId(String value) {
+        try {
+            return Integer.parseInt(value) >= 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
     @Override
     public void configure() {
         super.setIcon("\uD83D\uDCE6"); // somehow the package emoji does not print properly when using the emoji instead of unicode
         super.setName("encode");
-        super.setDescription("encode text using ch.fhnw.mada.huffman algorithm, outputs a table used by the algorithm and a compressed binary data file");
+        super.setDescription("encode text using ch.fhnw.mada.huffman algorithm, outputs a table used by the algorithm (or uses a trained dictionary) and a compressed binary data file");
     }
 }
@@ -1,15 +1,14 @@
 package ch.fhnw.mada.cli;
 
 import ch.fhnw.mada.cli.command.Command;
-import ch.fhnw.mada.cli.command.Option;
+import ch.fhnw.mada.cli.command.OptionBinder;
+import ch.fhnw.mada.cli.command.OptionBinders;
+import ch.fhnw.mada.cli.command.OptionDescriptor;
 
 import java.io.PrintStream;
-import java.lang.reflect.Field;
-import java.util.Arrays;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 public class EntryPoint {
     private final HashMap<String, Command> commands;
@@ -43,6 +42,11 @@ public class EntryPoint {
             cmd.run(this.output);
         } catch (Exception e) {
             output.println("\n⚠️ Something went wrong while running " + "\"" + cmd.getName() + "\"");
+            // the cause of an UncheckedIOException carries the actual message
+            var message = e instanceof UncheckedIOException ? e.getCause().getMessage() : e.getMessage();
+            if (message != null) {
+                output.println(message);
+            }
         }
     }
 
@@ -53,11 +57,8 @@ public class EntryPoint {
      */
     private void parseArguments(Command cmd, String[] args) {
         List<String> argumentList = List.of(args).subList(1, args.length);
-        Map<String, Option> fieldOptionMap = extractOptions(cmd);
-        for (Map.Entry<String, Option> entry : fieldOptionMap.entrySet()) {
-            String fieldName = entry.getKey();
-            Option option = entry.getValue();
-
+        OptionBinder binder = OptionBinders.of(cmd);
+        for (OptionDescriptor option : binder.options()) {
             int idx = argumentList.indexOf("-" + option.flagName());
             if (idx == -1 && option.required()) {
                 output.println("⚠️ command \"" + cmd.getName() +  "\" requires option " + option.flagName() + " <" + option.displayName() + ">");
@@ -71,51 +72,22 @@ public class EntryPoint {
             }
 
             String value = argumentList.get(++idx);
-            setOption(cmd, fieldName, value);
-        }
-    }
-
-    /**
-     * Extracts the options through the Option annotation and converts it to a Map which contains
-     * the field name as the key and a reference to the Option as the value.
-     * @param cmd Command
-     * @return Map<String, Option>
-     */
-    private Map<String, Option> extractOptions(Command cmd) {
-        // [f, f, f] -> { f: o, f: o, f: o }
-        return Arrays.stream(cmd.getClass().getDeclaredFields())
-                .filter(f -> f.isAnnotationPresent(Option.class))
-                .collect(Collectors.toMap(Field::getName, field -> field.getAnnotationsByType(Option.class)[0]));
-    }
-
-    /**
-     * Sets the value for the configured option on the command instance using reflection.
-     * @param cmd Command The command instance which the option value should be set on
-     * @param fieldName String The name of the field to set on the instance
-     * @param value String the value which will be set on the field
-     */
-    private void setOption(Command cmd, String fieldName, String value) {
-        try {
-            Field f = cmd.getClass().getDeclaredField(fieldName);
-            f.setAccessible(true);
-            f.set(cmd, f.getType().cast(value));
-        } catch (Exception e) {
-            output.println("😨 something went wrong! The command \"" + cmd.getName() +  "\" might have a bug!");
+            binder.set(cmd, option.fieldName(), value);
         }
     }
 
     /**
      * Compute and prints the help by extracting all necessary information from the registered Command instances
-     * using reflection.
+     * and their generated OptionBinder.
      */
     private void printHelp() {
         StringBuilder cmdHelp = new StringBuilder("Huffman tool\nUsage:\n");
 
         for (Command cmd : this.commands.values()) {
-            Map<String, Option> fieldOptionMap = extractOptions(cmd);
-            String options = fieldOptionMap.values().stream()
-                    .map(o -> String.format(" -%s <%s>", o.flagName(), o.displayName()))
-                    .collect(Collectors.joining());
+            StringBuilder options = new StringBuilder();
+            for (OptionDescriptor o : OptionBinders.of(cmd).options()) {
+                options.append(String.format(" -%s <%s>", o.flagName(), o.displayName()));
+            }
             cmdHelp.append(padding(String.format("%s %s%s", cmd.getIcon(), cmd.getName(), options), 72))
                     .append(cmd.getDescription())
                     .append("\n");
@@ -0,0 +1,55 @@
+package ch.fhnw.mada.cli;
+
+import ch.fhnw.mada.cli.command.Command;
+import ch.fhnw.mada.cli.command.Option;
+import ch.fhnw.mada.huffman.DictionaryRegistry;
+import ch.fhnw.mada.huffman.Trainer;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+
+public class Train extends Command {
+    @Option(displayName = "SAMPLE_DIR", flagName = "i")
+    String sampleInput;
+    @Option(displayName = "REGISTRY_DIR", flagName = "r")
+    String registry;
+    @Option(displayName = "DICTIONARY_ID", flagName = "d")
+    String dictionary;
+
+    @Override
+    public void run(PrintStream output) {
+        var sampleInputPath = Path.of(sampleInput);
+        var registryPath = Path.of(registry);
+
+        if (!sampleInputPath.toFile().isDirectory()) {
+            output.println(sampleInput + " is not a directory!");
+            return;
+        }
+        if (!Encode.isDictionaryId(dictionary)) {
+            output.println(dictionary + " is not a valid dictionary id!");
+            return;
+        }
+        var dictionaryId = Integer.parseInt(dictionary);
+        var dictionaries = DictionaryRegistry.open(registryPath);
+        if (dictionaries.contains(dictionaryId)) {
+            output.println("dictionary " + dictionaryId + " already exists in " + registry + "!");
+            return;
+        }
+
+        output.println("... training dictionary " + dictionaryId);
+
+        var trainer = new Trainer(sampleInputPath, dictionaries);
+        trainer.train(dictionaryId);
+
+        output.printf("...done!\ndictionary %d stored in: %s\n", dictionaryId, registryPath.toAbsolutePath());
+        output.println("sample files:" + trainer.getSampleCount());
+        output.println("sample size (bytes):" + trainer.getSampleSize());
+    }
+
+    @Override
+    public void configure() {
+        super.setIcon("🎓");
+        super.setName("train");
+        super.setDescription("create a shared huffman table (dictionary) from sample files, encode and decode can reference it by id");
+    }
+}
@@ -0,0 +1,34 @@
+package ch.fhnw.mada.cli.command;
+
+import java.util.List;
+
+/**
+ * Lists and sets the options of a command without reflection.
+ * Implementations are generated by the OptionProcessor for every command with Option fields,
+ * use OptionBinders.of to get the binder of a command.
+ */
+public interface OptionBinder {
+    OptionBinder EMPTY = new OptionBinder() {
+        @Override
+        public List<OptionDescriptor> options() {
+            return List.of();
+        }
+
+        @Override
+        public void set(Command cmd, String fieldName, String value) {
+        }
+    };
+
+    /**
+     * @return the options in the order they are declared in the command
+     */
+    List<OptionDescriptor> options();
+
+    /**
+     * Sets the value for the option field on the command instance.
+     * @param cmd Command The command instance which the option value should be set on
+     * @param fieldName String The name of the field to set on the instance
+     * @param value String the value which will be set on the field
+     */
+    void set(Command cmd, String fieldName, String value);
+}
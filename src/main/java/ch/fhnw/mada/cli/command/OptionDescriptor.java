@@ -0,0 +1,8 @@
+package ch.fhnw.mada.cli.command;
+
+/**
+ * The values of an Option annotation together with the name of the annotated field, created at compile time by the
+ * OptionProcessor.
+ */
+public record OptionDescriptor(String fieldName, String displayName, String flagName, boolean required) {
+}
@@ -0,0 +1,155 @@
+package ch.fhnw.mada.cli.command;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates an OptionBinder (COMMAND + "OptionBinder") for every command with Option fields and the OptionBinders
+ * lookup, which replaces scanning and setting the fields through reflection at runtime.
+ * The generated binder lives in the package of the command, hence Option fields must not be private.
+ */
+@SupportedAnnotationTypes("ch.fhnw.mada.cli.command.Option")
+public class OptionProcessor extends AbstractProcessor {
+    private static final String BINDERS = "ch.fhnw.mada.cli.command.OptionBinders";
+
+    private final Map<TypeElement, List<Element>> commands = new LinkedHashMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element field : roundEnv.getElementsAnnotatedWith(Option.class)) {
+            if (!this.isValid(field)) continue;
+            var command = (TypeElement) field.getEnclosingElement();
+            this.commands.computeIfAbsent(command, c -> new ArrayList<>()).add(field);
+        }
+
+        if (roundEnv.processingOver() || this.commands.isEmpty()) {
+            return false;
+        }
+
+        try {
+            for (var entry : this.commands.entrySet()) {
+                this.writeBinder(entry.getKey(), entry.getValue());
+            }
+            this.writeBinders();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.commands.clear();
+        return false;
+    }
+
+    private boolean isValid(Element field) {
+        if (field.getModifiers().contains(Modifier.PRIVATE)) {
+            this.error(field, "@Option fields must not be private");
+            return false;
+        }
+        if (!field.asType().toString().equals(String.class.getName())) {
+            this.error(field, "@Option fields must be of type String");
+            return false;
+        }
+        if (field.getEnclosingElement().getKind() != ElementKind.CLASS) {
+            this.error(field, "@Option fields must be declared in a command class");
+            return false;
+        }
+        return true;
+    }
+
+    private void writeBinder(TypeElement command, List<Element> fields) throws IOException {
+        var packageName = this.processingEnv.getElementUtils().getPackageOf(command).getQualifiedName().toString();
+        var commandName = command.getSimpleName().toString();
+        var binderName = commandName + "OptionBinder";
+
+        var file = this.processingEnv.getFiler().createSourceFile(packageName + "." + binderName, command);
+        try (var out = new PrintWriter(file.openWriter())) {
+            out.println("package " + packageName + ";");
+            out.println();
+            out.println("import ch.fhnw.mada.cli.command.Command;");
+            out.println("import ch.fhnw.mada.cli.command.OptionBinder;");
+            out.println("import ch.fhnw.mada.cli.command.OptionDescriptor;");
+            out.println();
+            out.println("import java.util.List;");
+            out.println();
+            out.println("public final class " + binderName + " implements OptionBinder {");
+            out.println("    private static final List<OptionDescriptor> OPTIONS = List.of(");
+            for (int i = 0; i < fields.size(); i++) {
+                var field = fields.get(i);
+                var option = field.getAnnotation(Option.class);
+                out.printf(
+                    "        new OptionDescriptor(%s, %s, %s, %s)%s%n",
+                    literal(field.getSimpleName().toString()),
+                    literal(option.displayName()),
+                    literal(option.flagName()),
+                    option.required(),
+                    i < fields.size() - 1 ? "," : ""
+                );
+            }
+            out.println("    );");
+            out.println();
+            out.println("    @Override");
+            out.println("    public List<OptionDescriptor> options() {");
+            out.println("        return OPTIONS;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public void set(Command cmd, String fieldName, String value) {");
+            out.println("        var command = (" + commandName + ") cmd;");
+            out.println("        switch (fieldName) {");
+            for (var field : fields) {
+                var name = field.getSimpleName().toString();
+                out.println("            case " + literal(name) + " -> command." + name + " = value;");
+            }
+            out.println("            default -> throw new IllegalArgumentException(\"unknown option field \" + fieldName);");
+            out.println("        }");
+            out.println("    }");
+            out.println("}");
+        }
+    }
+
+    private void writeBinders() throws IOException {
+        var originating = this.commands.keySet().toArray(new Element[0]);
+        var file = this.processingEnv.getFiler().createSourceFile(BINDERS, originating);
+        try (var out = new PrintWriter(file.openWriter())) {
+            out.println("package ch.fhnw.mada.cli.command;");
+            out.println();
+            out.println("public final class OptionBinders {");
+            out.println("    private OptionBinders() {}");
+            out.println();
+            out.println("    public static OptionBinder of(Command cmd) {");
+            for (var command : this.commands.keySet()) {
+                var name = command.getQualifiedName().toString();
+                out.println("        if (cmd instanceof " + name + ") return new " + name + "OptionBinder();");
+            }
+            out.println("        return OptionBinder.EMPTY;");
+            out.println("    }");
+            out.println("}");
+        }
+    }
+
+    private void error(Element element, String message) {
+        this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private static String literal(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
@@ -0,0 +1,56 @@
+package ch.fhnw.mada.huffman;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Collects codes in a long and moves them to the output byte by byte.
+ */
+class BitPacker {
+    static final int MAX_CODE_LENGTH = 56;
+
+    private final byte[] output;
+    private int position = 0;
+    private long bits = 0;
+    private int bitCount = 0;
+
+    /**
+     * @param symbols the number of codes which will be written
+     * @param lengths the code lengths, used to calculate the worst case output size
+     */
+    BitPacker(int symbols, int[] lengths) throws IOException {
+        var maxLength = 0;
+        for (var length : lengths) {
+            maxLength = Math.max(maxLength, length);
+        }
+        if (maxLength > MAX_CODE_LENGTH) {
+            throw new IOException("huffman code with " + maxLength + " bits exceeds " + MAX_CODE_LENGTH + " bits");
+        }
+
+        var capacity = ((long) symbols * maxLength) / 8 + 1;
+        if (capacity > Integer.MAX_VALUE - 8) {
+            throw new IOException("input too large");
+        }
+        this.output = new byte[(int) capacity];
+    }
+
+    void write(long code, int length) {
+        this.bits = (this.bits << length) | code;
+        this.bitCount += length;
+        while (this.bitCount >= 8) {
+            this.bitCount -= 8;
+            this.output[this.position++] = (byte) (this.bits >>> this.bitCount);
+        }
+    }
+
+    /**
+     * Writes the padding (a 1 followed by 0s) and returns the packed bytes.
+     * @return byte[]
+     */
+    byte[] finish() {
+        var padLength = 8 - this.bitCount;
+        this.output[this.position++] = (byte) ((this.bits << padLength) | (1L << (padLength - 1)));
+        this.bitCount = 0;
+        return Arrays.copyOf(this.output, this.position);
+    }
+}
@@ -0,0 +1,284 @@
+package ch.fhnw.mada.huffman;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The index of a data file, a data file looks like this:
+ * [header: magic, committed end][table 0][block 0][entry 0][table 1][block 1][entry 1]...
+ * where every block is padded on its own and may either use the table file, a table embedded right before it or a
+ * dictionary from a DictionaryRegistry. Each entry is written right behind its block and points to the end of the
+ * previous entry, so appending only adds the new table, block and a single entry.
+ *
+ * The committed end in the header is only updated after the new block and entry are on disk. An interrupted append
+ * leaves the previous entries intact, the bytes it wrote behind the committed end are reported when decoding and
+ * replaced by the next append.
+ * Files written before the index existed have no header and are read as a single block using the table file.
+ */
+public class BlockIndex {
+    private static final int HEADER_MAGIC = 0x48554641; // HUFA
+    private static final int ENTRY_MAGIC = 0x48554649; // HUFI
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES;
+    private static final int ENTRY_SIZE = 5 * Long.BYTES + Integer.BYTES + Integer.BYTES;
+    private static final int TABLE_FILE = 0;
+    private static final int DICTIONARY = -1;
+
+    /**
+     * Marks a block whose table checksum is unknown (blocks of files written before the index existed).
+     */
+    public static final long NO_CHECKSUM = -1;
+
+    /**
+     * @param offset position of the encoded data in the file
+     * @param length length of the encoded data in bytes
+     * @param tableOffset position of the embedded table in the file or the dictionary id
+     * @param tableLength length of the embedded table in bytes, 0 if the block uses the table file and -1 if it uses
+     *                    a dictionary
+     * @param tableChecksum CRC32 of the table as it was used for encoding, NO_CHECKSUM if unknown
+     */
+    public record Block(long offset, long length, long tableOffset, int tableLength, long tableChecksum) {
+        public boolean hasOwnTable() {
+            return tableLength > 0;
+        }
+
+        public boolean usesDictionary() {
+            return tableLength == DICTIONARY;
+        }
+
+        public boolean usesTableFile() {
+            return tableLength == TABLE_FILE;
+        }
+
+        public int dictionaryId() {
+            return (int) tableOffset;
+        }
+    }
+
+    private final List<Block> blocks;
+    private long committedEnd;
+    private final long size;
+
+    private BlockIndex(List<Block> blocks, long committedEnd, long size) {
+        this.blocks = blocks;
+        this.committedEnd = committedEnd;
+        this.size = size;
+    }
+
+    /**
+     * Reads the index of the supplied file, a file without a header is treated as a single block.
+     * @param channel FileChannel
+     * @return BlockIndex
+     */
+    public static BlockIndex read(FileChannel channel) throws IOException {
+        var size = channel.size();
+        if (!hasHeader(channel)) {
+            var blocks = new ArrayList<Block>();
+            blocks.add(new Block(0, size, 0, TABLE_FILE, NO_CHECKSUM));
+            return new BlockIndex(blocks, size, size);
+        }
+
+        var header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, 0);
+        var committedEnd = header.getLong(Integer.BYTES);
+        if (committedEnd < HEADER_SIZE || committedEnd > size) {
+            throw new IOException("corrupt data file header");
+        }
+
+        // follow the entries from the last to the first one
+        var blocks = new ArrayList<Block>();
+        var entry = ByteBuffer.allocate(ENTRY_SIZE);
+        var end = committedEnd;
+        while (end > HEADER_SIZE) {
+            var entryOffset = end - ENTRY_SIZE;
+            if (entryOffset < HEADER_SIZE) {
+                throw new IOException("corrupt data file index");
+            }
+            entry.clear();
+            readFully(channel, entry, entryOffset);
+            entry.flip();
+            var block = new Block(entry.getLong(), entry.getLong(), entry.getLong(), entry.getInt(), entry.getLong());
+            var previousEnd = entry.getLong();
+            var magic = entry.getInt();
+            if (magic != ENTRY_MAGIC || previousEnd < HEADER_SIZE || previousEnd > block.offset()
+                || block.length() < 0 || block.offset() + block.length() != entryOffset) {
+                throw new IOException("corrupt data file index");
+            }
+            blocks.add(block);
+            end = previousEnd;
+        }
+        Collections.reverse(blocks);
+        return new BlockIndex(blocks, committedEnd, size);
+    }
+
+    /**
+     * Writes the header of an empty data file.
+     * @param channel FileChannel opened for writing on an empty file
+     * @return BlockIndex
+     */
+    public static BlockIndex create(FileChannel channel) throws IOException {
+        var header = ByteBuffer.allocate(HEADER_SIZE).putInt(HEADER_MAGIC).putLong(HEADER_SIZE).flip();
+        write(channel, header, 0);
+        return new BlockIndex(new ArrayList<>(), HEADER_SIZE, HEADER_SIZE);
+    }
+
+    /**
+     * Converts a file without a header (written before the index existed) by copying it into a new file with a
+     * header, which then replaces the original. Files with a header are left as they are.
+     * @param file Path
+     */
+    public static void upgrade(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (hasHeader(channel)) return;
+        }
+
+        var upgraded = file.resolveSibling(file.getFileName() + ".upgrade");
+        try (
+            var source = FileChannel.open(file, StandardOpenOption.READ);
+            var target = FileChannel.open(
+                upgraded,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING
+            )
+        ) {
+            var index = create(target);
+            var size = source.size();
+            var copied = 0L;
+            while (copied < size) {
+                copied += source.transferTo(copied, size - copied, target.position(HEADER_SIZE + copied));
+            }
+            index.commit(target, new Block(HEADER_SIZE, size, 0, TABLE_FILE, NO_CHECKSUM), HEADER_SIZE + size);
+        }
+        Files.move(upgraded, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Appends a block using the table file.
+     * @param channel FileChannel opened for reading and writing
+     * @param tableChecksum the checksum of the table file
+     * @param data the encoded (and padded) data of the block
+     */
+    public void appendWithTableFile(FileChannel channel, long tableChecksum, byte[] data) throws IOException {
+        this.appendBlock(channel, null, 0, TABLE_FILE, tableChecksum, data);
+    }
+
+    /**
+     * Appends a block and its table, which is stored right before the block.
+     * @param channel FileChannel opened for reading and writing
+     * @param table the serialized table of the block
+     * @param data the encoded (and padded) data of the block
+     */
+    public void appendWithOwnTable(FileChannel channel, byte[] table, byte[] data) throws IOException {
+        this.appendBlock(channel, table, 0, table.length, checksum(table), data);
+    }
+
+    /**
+     * Appends a block using a dictionary.
+     * @param channel FileChannel opened for reading and writing
+     * @param dictionaryId the id of the dictionary in the registry
+     * @param dictionaryChecksum the checksum of the dictionary file
+     * @param data the encoded (and padded) data of the block
+     */
+    public void appendWithDictionary(FileChannel channel, int dictionaryId, long dictionaryChecksum, byte[] data)
+        throws IOException {
+        this.appendBlock(channel, null, dictionaryId, DICTIONARY, dictionaryChecksum, data);
+    }
+
+    private void appendBlock(
+        FileChannel channel,
+        byte[] table,
+        long tableOffset,
+        int tableLength,
+        long tableChecksum,
+        byte[] data
+    ) throws IOException {
+        // left overs of an interrupted append are not part of the file
+        channel.truncate(this.committedEnd);
+
+        var position = this.committedEnd;
+        if (table != null) {
+            tableOffset = position;
+            position += write(channel, ByteBuffer.wrap(table), position);
+        }
+        var block = new Block(position, data.length, tableOffset, tableLength, tableChecksum);
+        position += write(channel, ByteBuffer.wrap(data), position);
+        this.commit(channel, block, position);
+    }
+
+    /**
+     * Writes the entry of the block (which has to end at position) and moves the committed end behind it.
+     */
+    private void commit(FileChannel channel, Block block, long position) throws IOException {
+        var entry = ByteBuffer.allocate(ENTRY_SIZE)
+            .putLong(block.offset())
+            .putLong(block.length())
+            .putLong(block.tableOffset())
+            .putInt(block.tableLength())
+            .putLong(block.tableChecksum())
+            .putLong(this.committedEnd)
+            .putInt(ENTRY_MAGIC)
+            .flip();
+        position += write(channel, entry, position);
+        // block and entry have to be on disk before the header references them
+        channel.force(true);
+
+        write(channel, ByteBuffer.allocate(Long.BYTES).putLong(position).flip(), Integer.BYTES);
+        channel.force(true);
+
+        this.committedEnd = position;
+        this.blocks.add(block);
+    }
+
+    public List<Block> getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * @return the number of bytes behind the last complete entry, left by an interrupted append
+     */
+    public long getTrailingBytes() {
+        return this.size - this.committedEnd;
+    }
+
+    /**
+     * @return the CRC32 of the supplied table bytes
+     */
+    public static long checksum(byte[] table) {
+        var crc = new CRC32();
+        crc.update(table);
+        return crc.getValue();
+    }
+
+    private static boolean hasHeader(FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_SIZE) return false;
+        var magic = ByteBuffer.allocate(Integer.BYTES);
+        readFully(channel, magic, 0);
+        return magic.getInt(0) == HEADER_MAGIC;
+    }
+
+    private static int write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        var written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        var start = buffer.position();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position() - start) == -1) {
+                throw new IOException("unexpected end of data file");
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package ch.fhnw.mada.huffman;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Holds the huffman code(s) used to encode/decode a file.
+ * A plain table only has the fallback codes. An order-1 table additionally has separate codes for the characters
+ * following a given (previous) character, contexts without codes of their own share the fallback codes.
+ *
+ * Plain tables are written in the original format ASCII_0:CODE_0-ASCII_1:CODE_1-...
+ * Order-1 tables are written line by line as CONTEXT=ASCII_0:CODE_0-... where the context * marks the fallback codes.
+ */
+public class CodeTable {
+    /**
+     * Context used for the very first character, it never has codes of its own.
+     */
+    static final char NO_CONTEXT = '\uFFFF';
+
+    private static final String FALLBACK_CONTEXT = "*";
+
+    private final Map<Character, String> fallback;
+    private final Map<Character, Map<Character, String>> contexts;
+
+    public CodeTable(Map<Character, String> fallback) {
+        this(fallback, new HashMap<>());
+    }
+
+    public CodeTable(Map<Character, String> fallback, Map<Character, Map<Character, String>> contexts) {
+        this.fallback = fallback;
+        this.contexts = contexts;
+    }
+
+    /**
+     * Returns the codes to use for the character following the supplied previous character.
+     * @param previous the previously coded character or NO_CONTEXT
+     * @return Map<Character, String>
+     */
+    public Map<Character, String> codesFor(char previous) {
+        return this.contexts.getOrDefault(previous, this.fallback);
+    }
+
+    public Map<Character, String> getFallback() {
+        return fallback;
+    }
+
+    public Map<Character, Map<Character, String>> getContexts() {
+        return contexts;
+    }
+
+    public boolean isContextual() {
+        return !this.contexts.isEmpty();
+    }
+
+    public String serialize() {
+        if (!this.isContextual()) {
+            return serializeCodes(this.fallback);
+        }
+
+        var sb = new StringBuilder();
+        sb.append(FALLBACK_CONTEXT).append("=").append(serializeCodes(this.fallback));
+        for (var entry : this.contexts.entrySet()) {
+            sb.append("\n");
+            sb.append((int) entry.getKey()).append("=").append(serializeCodes(entry.getValue()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parses a table written by serialize (or any table in the original format).
+     * @param content String
+     * @return CodeTable
+     */
+    public static CodeTable parse(String content) {
+        if (!content.contains("=")) {
+            return new CodeTable(parseCodes(content.strip()));
+        }
+
+        Map<Character, String> fallback = new HashMap<>();
+        Map<Character, Map<Character, String>> contexts = new HashMap<>();
+        for (var line : content.split("\n")) {
+            if (line.isBlank()) continue;
+            var parts = line.strip().split("=", 2);
+            if (parts[0].equals(FALLBACK_CONTEXT)) {
+                fallback = parseCodes(parts[1]);
+                continue;
+            }
+            contexts.put((char) Integer.parseInt(parts[0]), parseCodes(parts[1]));
+        }
+        return new CodeTable(fallback, contexts);
+    }
+
+    static String serializeCodes(Map<Character, String> codes) {
+        var sb = new StringBuilder();
+        for (var entry : codes.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append("-");
+            }
+            sb.append((int) entry.getKey());
+            sb.append(":");
+            sb.append(entry.getValue());
+        }
+        return sb.toString();
+    }
+
+    private static Map<Character, String> parseCodes(String line) {
+        var codes = new HashMap<Character, String>();
+        for (var entry : line.split("-")) {
+            if (entry.isBlank()) continue;
+            var s = entry.split(":");
+            codes.put((char) Integer.parseInt(s[0]), s[1]);
+        }
+        return codes;
+    }
+}
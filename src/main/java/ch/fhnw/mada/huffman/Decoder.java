@@ -5,19 +5,28 @@ import ch.fhnw.mada.tree.Node;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * table + data -> raw text
  */
 public class Decoder {
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_CHAR_BYTES = 3;
+
     private Path tableSource;
     private Path dataSource;
     private Path output;
+    private DictionaryRegistry dictionaries;
 
     public Decoder(Path tableSource, Path dataSource, Path output) {
         this.tableSource = tableSource;
@@ -25,106 +34,228 @@ public class Decoder {
         this.output = output;
     }
 
+    /**
+     * @param tableSource the table file, may be null if all blocks use a dictionary or an embedded table
+     * @param output the output file, may be null if only decode(WritableByteChannel) is used
+     * @param dictionaries the registry to load the dictionaries referenced by the data from
+     */
+    public Decoder(Path tableSource, Path dataSource, Path output, DictionaryRegistry dictionaries) {
+        this(tableSource, dataSource, output);
+        this.dictionaries = dictionaries;
+    }
+
     /**
      * Decode will perform the following pipeline:
      * 1. extract the huffman table from the tableSource and store it as a map where the value is the character
      *    and the key represents the bits used to encode the character.
      * 2. Each entry of the map will be inserted into a tree using the bits as the path for insertion in the tree
-     * 3. Read the compressed data bit by bit and simultaneously step through the tree decoding each character into a string
-     * 4. write the decoded data to the output path
+     *    (order-1 tables result in one tree per context plus the fallback tree)
+     * 3. Read the compressed data bit by bit and simultaneously step through the tree decoding each character into a buffer
+     * 4. write the decoded data to the output path whenever the buffer is full
+     *
+     * Data files with appended blocks are decoded block by block, blocks with an embedded table or a dictionary use
+     * it instead of the table from the tableSource.
      */
     public void decode() {
-        // parse table from file
-        var table = this.extractTable(this.tableSource);
+        if (this.output == null) {
+            throw new IllegalStateException("no output path supplied, use decode(WritableByteChannel) instead");
+        }
+        try (var channel = FileChannel.open(
+            this.output,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING
+        )) {
+            this.decode(channel);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-        // fill ch.fhnw.mada.tree
-        var tree = new BTree<>(new Node<String>());
-        table.forEach(tree::insert);
+    /**
+     * Decodes the data and writes the decoded bytes to the supplied channel (file, socket, pipe, ...) in batches.
+     * Characters are written as the bytes they were encoded from, no charset conversion takes place.
+     * The channel has to be in blocking mode, a non-blocking channel (e.g. a SocketChannel registered with a selector)
+     * is rejected as partial writes are not waited for. The channel is not closed.
+     * @param target WritableByteChannel
+     */
+    public void decode(WritableByteChannel target) {
+        if (target instanceof SelectableChannel selectable && !selectable.isBlocking()) {
+            throw new IllegalArgumentException("the target channel has to be in blocking mode");
+        }
+
+        // parse table from file
+        byte[] tableBytes = null;
+        if (this.tableSource != null) {
+            try {
+                tableBytes = Files.readAllBytes(this.tableSource);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
 
         // extract result from source file using supplied table
-        var result = extractData(this.dataSource, tree);
+        extractData(this.dataSource, tableBytes, target);
+    }
 
-        this.writeDecompressedFile(this.output, result);
+    /**
+     * Creates a tree where the huffman code of each character is used as the path to the leaf holding the character.
+     */
+    private BTree<Character> createTree(Map<Character, String> codes) {
+        var tree = new BTree<>(new Node<Character>());
+        codes.forEach((c, code) -> tree.insert(this.parseBinaryString(code), c));
+        return tree;
+    }
+
+    private int[] parseBinaryString(String binary) {
+        var bits = new int[binary.length()];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = binary.charAt(i) - '0';
+        }
+        return bits;
     }
 
     /**
-     * Parses string of format ASCII_0:CODE_0-ASCII_1:CODE_1-... into a Map where the key is the ch.fhnw.mada.huffman code for
-     * the character and the value is the ascii character.
+     * Decodes all blocks of the data file, the tables of the blocks are checked against the checksums recorded in
+     * the index before anything is decoded with them (see BlockIndex).
+     * @param tableFile the content of the table file or null
      */
-    private Map<int[], String> extractTable(Path source) {
-        try (var reader = Files.newBufferedReader(source)) {
-            return reader.lines()
-                .map(l -> l.split("-"))
-                .flatMap(Arrays::stream)
-                .map(s -> s.split(":"))
-                .collect(Collectors.toMap(s -> this.parseBinaryString(s[1]), s -> this.parseASCIIChar((s[0]))));
+    private void extractData(Path source, byte[] tableFile, WritableByteChannel target) {
+        var result = ByteBuffer.allocateDirect(OUTPUT_BUFFER_SIZE);
+        try (var channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            var index = BlockIndex.read(channel);
+            if (index.getTrailingBytes() > 0) {
+                throw new IOException(
+                    source + " has " + index.getTrailingBytes() + " trailing bytes which are not part of any block"
+                        + " (left by an interrupted append, the next append removes them)"
+                );
+            }
+
+            CodeTable table = null;
+            if (tableFile != null) {
+                table = CodeTable.parse(new String(tableFile, StandardCharsets.UTF_8));
+            }
+            for (var block : index.getBlocks()) {
+                var blockTable = table;
+                if (block.usesTableFile() && tableFile != null) {
+                    this.verify(block, tableFile, "table file");
+                }
+                if (block.hasOwnTable()) {
+                    var embedded = this.readBytes(channel, block.tableOffset(), block.tableLength());
+                    this.verify(block, embedded, "embedded table");
+                    blockTable = CodeTable.parse(new String(embedded, StandardCharsets.UTF_8));
+                }
+                if (block.usesDictionary()) {
+                    if (this.dictionaries == null) {
+                        throw new IOException("data uses dictionary " + block.dictionaryId() + " but no registry was supplied");
+                    }
+                    blockTable = this.dictionaries.get(block.dictionaryId());
+                    if (block.tableChecksum() != this.dictionaries.checksum(block.dictionaryId())) {
+                        throw new IOException(
+                            "dictionary " + block.dictionaryId() + " in " + this.dictionaries.getDirectory()
+                                + " is not the dictionary the data was encoded with"
+                        );
+                    }
+                }
+                if (blockTable == null) {
+                    throw new IOException("data requires a table file");
+                }
+                // :( bad for memory but we don't care about it in this simple example implementation
+                var content = this.readBytes(channel, block.offset(), (int) block.length());
+                this.extractBlock(content, blockTable, result, target);
+            }
+            this.flush(result, target);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
     }
 
-    private int[] parseBinaryString(String binary) {
-        return Arrays.stream(binary.split(""))
-            .mapToInt(Integer::parseInt)
-            .toArray();
+    private void verify(BlockIndex.Block block, byte[] table, String name) throws IOException {
+        if (block.tableChecksum() != BlockIndex.NO_CHECKSUM && block.tableChecksum() != BlockIndex.checksum(table)) {
+            throw new IOException(name + " does not match the table the block at " + block.offset() + " was encoded with");
+        }
     }
 
-    private String parseASCIIChar(String charCode) {
-        var code = Integer.parseInt(charCode);
-        return String.valueOf((char) code);
+    private byte[] readBytes(FileChannel channel, long position, int length) throws IOException {
+        var buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) == -1) {
+                throw new IOException("unexpected end of data file");
+            }
+        }
+        return buffer.array();
     }
 
-    private String extractData(Path source, BTree<String> tree) {
-        var result = new StringBuilder();
-        try (var inputStream = Files.newInputStream(source)) {
-            // :( bad for memory but we don't care about it in this simple example implementation
-            var content = inputStream.readAllBytes();
+    private void extractBlock(byte[] content, CodeTable table, ByteBuffer result, WritableByteChannel target) throws IOException {
+        if (content.length == 0) return;
 
-            // calculate padding
-            var lastByte = content[content.length - 1];
-            var lastBitIndex = (source.toFile().length() * 8) - 1;
-            for (int i = 0; i < 8; i++) {
-                // shift and logical AND to get bit at position
-                var tempBit = lastByte >> i & 1;
-                if (tempBit != 1) {
-                    lastBitIndex -= 1;
-                    continue;
-                }
+        // fill ch.fhnw.mada.tree
+        var fallback = this.createTree(table.getFallback());
+        var contexts = new HashMap<Character, BTree<Character>>();
+        table.getContexts().forEach((context, codes) -> contexts.put(context, this.createTree(codes)));
+
+        // calculate padding
+        var lastByte = content[content.length - 1];
+        var lastBitIndex = ((long) content.length * 8) - 1;
+        for (int i = 0; i < 8; i++) {
+            // shift and logical AND to get bit at position
+            var tempBit = lastByte >> i & 1;
+            if (tempBit != 1) {
                 lastBitIndex -= 1;
-                break;
+                continue;
             }
+            lastBitIndex -= 1;
+            break;
+        }
 
-            // decoding magic
-            var index = 0;
-            for (byte b : content) {
-                for (int i = 7; 0 <= i; i--) {
-                    // prevent reading of padding
-                    if (index > lastBitIndex) break;
-
-                    // shift and logical AND to get bit at position
-                    var bit = (b >> i) & 1;
-                    index += 1;
-
-                    // traverse tree on each bit
-                    var node = tree.step(bit);
-                    if (node != null && node.isLeaf()) {
-                        result.append(node.getData());
-                        tree.reset();
+        // decoding magic, each decoded character selects the tree for the next one
+        var tree = fallback;
+        long index = 0;
+        for (byte b : content) {
+            for (int i = 7; 0 <= i; i--) {
+                // prevent reading of padding
+                if (index > lastBitIndex) break;
+
+                // shift and logical AND to get bit at position
+                var bit = (b >> i) & 1;
+                index += 1;
+
+                // traverse tree on each bit
+                var node = tree.step(bit);
+                if (node != null && node.isLeaf()) {
+                    if (result.remaining() < MAX_CHAR_BYTES) {
+                        this.flush(result, target);
                     }
+                    this.put(result, node.getData());
+                    tree.reset();
+                    tree = contexts.getOrDefault(node.getData(), fallback);
                 }
             }
+        }
+    }
 
-            return result.toString();
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
+    /**
+     * Characters up to 0xFF were encoded from single bytes and are written as such, larger characters can only stem
+     * from tables created by other tools and are written as UTF-8.
+     */
+    private void put(ByteBuffer result, char c) {
+        if (c <= 0xFF) {
+            result.put((byte) c);
+            return;
         }
+        result.put(String.valueOf(c).getBytes(StandardCharsets.UTF_8));
     }
 
-    private void writeDecompressedFile(Path target, String content) {
-        try (var writer = Files.newBufferedWriter(target)) {
-            writer.write(content);
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
+    /**
+     * Writes the buffered bytes, a blocking channel writes at least one byte per call (see decode).
+     */
+    private void flush(ByteBuffer result, WritableByteChannel target) throws IOException {
+        result.flip();
+        while (result.hasRemaining()) {
+            if (target.write(result) == 0) {
+                throw new IOException("the target channel accepted no bytes, it has to be in blocking mode");
+            }
         }
+        result.clear();
     }
 }
@@ -0,0 +1,110 @@
+package ch.fhnw.mada.huffman;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A directory of shared huffman tables (dictionaries) stored as ID.txt in the usual table format.
+ * A dictionary is only read and parsed on its first use and then kept in memory, so a single encode/decode only pays
+ * for the dictionary it needs and a long-running process loads each dictionary once.
+ * Dictionaries are never overwritten, data encoded with a dictionary records its checksum (see BlockIndex) so a
+ * dictionary replaced by other means is detected when decoding.
+ */
+public class DictionaryRegistry {
+    private static final String EXTENSION = ".txt";
+    private static final Map<Path, DictionaryRegistry> LOADED = new ConcurrentHashMap<>();
+
+    private final Path directory;
+    private final Map<Integer, Dictionary> dictionaries;
+
+    private record Dictionary(CodeTable table, long checksum) {
+    }
+
+    private DictionaryRegistry(Path directory, Map<Integer, Dictionary> dictionaries) {
+        this.directory = directory;
+        this.dictionaries = dictionaries;
+    }
+
+    /**
+     * Returns the registry for the supplied directory, the dictionaries are loaded on first access.
+     * @param directory Path
+     * @return DictionaryRegistry
+     */
+    public static DictionaryRegistry open(Path directory) {
+        return LOADED.computeIfAbsent(
+            directory.toAbsolutePath().normalize(),
+            d -> new DictionaryRegistry(d, new ConcurrentHashMap<>())
+        );
+    }
+
+    public CodeTable get(int id) {
+        return this.find(id).table();
+    }
+
+    /**
+     * @return the CRC32 of the dictionary file
+     */
+    public long checksum(int id) {
+        return this.find(id).checksum();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    private Dictionary find(int id) {
+        var dictionary = this.dictionaries.computeIfAbsent(id, this::load);
+        if (dictionary == null) {
+            throw new UncheckedIOException(new IOException("dictionary " + id + " not found in " + this.directory));
+        }
+        return dictionary;
+    }
+
+    public boolean contains(int id) {
+        return this.dictionaries.containsKey(id) || Files.isRegularFile(this.pathOf(id));
+    }
+
+    /**
+     * Reads and parses a dictionary file.
+     * @return the dictionary or null if it does not exist
+     */
+    private Dictionary load(int id) {
+        var file = this.pathOf(id);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            var content = Files.readAllBytes(file);
+            return new Dictionary(CodeTable.parse(new String(content, StandardCharsets.UTF_8)), BlockIndex.checksum(content));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path pathOf(int id) {
+        return this.directory.resolve(id + EXTENSION);
+    }
+
+    /**
+     * Writes the dictionary to the registry directory and makes it available immediately.
+     * Fails if a dictionary with the same id already exists, data encoded with it would no longer decode.
+     * @param id int
+     * @param dictionary CodeTable
+     */
+    public void store(int id, CodeTable dictionary) {
+        try {
+            Files.createDirectories(this.directory);
+            var content = dictionary.serialize().getBytes(StandardCharsets.UTF_8);
+            Files.write(this.pathOf(id), content, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW);
+            this.dictionaries.put(id, new Dictionary(dictionary, BlockIndex.checksum(content)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -4,24 +4,28 @@ import ch.fhnw.mada.tree.Node;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
+import java.nio.file.StandardOpenOption;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.PriorityQueue;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 /**
  * raw text -> table + data
  */
 public class Encoder {
+    private static final Kernels KERNELS = Kernels.load();
+
     private Path dataSource;
     private Path tableOutput;
     private Path compressedOutput;
 
+    private boolean contextual;
+
     private long initialSize = 0;
     private long compressedSize = 0;
 
@@ -31,6 +35,15 @@ public class Encoder {
         this.compressedOutput = compressedOutput;
     }
 
+    public Encoder(Path dataSource, Path compressedOutput) {
+        this(dataSource, null, compressedOutput);
+    }
+
+    public Encoder(Path dataSource, Path tableOutput, Path compressedOutput, boolean contextual) {
+        this(dataSource, tableOutput, compressedOutput);
+        this.contextual = contextual;
+    }
+
     /**
      * Encode will perform the following pipeline:
      * 1. read each character from the dataSource
@@ -39,9 +52,114 @@ public class Encoder {
      * 4. recursively traverse the tree to create a map which contains the character as the key and the huffman code as the value
      * 5a write the huffman table to tableOutput
      * 5b read the dataSource convert each character and write it to the compressedOutput path
+     *
+     * In contextual (order-1) mode step 2 to 4 are additionally performed for the characters following each
+     * character, see buildContextTable.
      */
     public void encode() {
-        var charCount = this.read(this.dataSource);
+        CodeTable table;
+        if (this.contextual) {
+            table = this.buildContextTable(this.dataSource);
+        } else {
+            table = new CodeTable(buildCodes(this.read(this.dataSource)));
+        }
+
+        var serialized = table.serialize().getBytes(StandardCharsets.UTF_8);
+        this.writeTable(serialized, this.tableOutput);
+        this.writeData(table, BlockIndex.checksum(serialized), this.compressedOutput, this.dataSource);
+    }
+
+    /**
+     * Encodes the dataSource using a dictionary instead of building a table, no table is written as the data file
+     * only references the dictionary id and checksum (see BlockIndex).
+     * @param dictionaries the DictionaryRegistry containing the dictionary
+     * @param dictionaryId the id of the dictionary in the DictionaryRegistry
+     */
+    public void encode(DictionaryRegistry dictionaries, int dictionaryId) {
+        try (var channel = FileChannel.open(
+            this.compressedOutput,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING
+        )) {
+            var content = Files.readAllBytes(this.dataSource);
+            this.initialSize = content.length;
+
+            var data = this.packData(dictionaries.get(dictionaryId), content);
+            BlockIndex.create(channel)
+                .appendWithDictionary(channel, dictionaryId, dictionaries.checksum(dictionaryId), data);
+            this.compressedSize = channel.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Append encodes the dataSource as a new block at the end of the existing compressedOutput without touching the
+     * blocks already stored in it, tableOutput is expected to contain the table of the existing data.
+     * The new block uses the existing table if it contains a code for every character and is not outperformed by a
+     * table built for the new data, otherwise the new table is embedded into the data file right before the block.
+     * Data files written before the index existed are converted first, see BlockIndex.upgrade.
+     * See BlockIndex for the resulting file layout.
+     */
+    public void append() {
+        try {
+            BlockIndex.upgrade(this.compressedOutput);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        try (var channel = FileChannel.open(this.compressedOutput, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            var index = BlockIndex.read(channel);
+            var existingTable = Files.readAllBytes(this.tableOutput);
+            var existingChecksum = BlockIndex.checksum(existingTable);
+            for (var block : index.getBlocks()) {
+                if (block.usesTableFile() && block.tableChecksum() != BlockIndex.NO_CHECKSUM
+                    && block.tableChecksum() != existingChecksum) {
+                    throw new IOException(this.tableOutput + " is not the table the data was encoded with");
+                }
+            }
+
+            var existing = CodeTable.parse(new String(existingTable, StandardCharsets.UTF_8));
+            CodeTable own;
+            if (this.contextual) {
+                own = this.buildContextTable(this.dataSource);
+            } else {
+                own = new CodeTable(buildCodes(this.read(this.dataSource)));
+            }
+
+            var content = Files.readAllBytes(this.dataSource);
+            var ownTable = own.serialize().getBytes(StandardCharsets.UTF_8);
+            var existingBits = this.countBits(existing, content);
+            var ownBits = this.countBits(own, content);
+
+            var useExisting = existingBits != -1 && (ownBits == -1 || existingBits <= ownBits + 8L * ownTable.length);
+            var data = this.packData(useExisting ? existing : own, content);
+            this.compressedSize = data.length + (useExisting ? 0 : ownTable.length);
+
+            if (useExisting) {
+                index.appendWithTableFile(channel, existingChecksum, data);
+            } else {
+                index.appendWithOwnTable(channel, ownTable, data);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Builds the huffman tree for the supplied occurrences and returns the resulting (Char -> Binary String) map.
+     * @param charCount map containing the occurrence of each character
+     * @return Map<Character, String>
+     */
+    static Map<Character, String> buildCodes(Map<Character, Long> charCount) {
+        var charCodeMap = new HashMap<Character, String>();
+
+        // a tree with a single leaf has no path, the character still needs a code of at least one bit
+        if (charCount.size() == 1) {
+            charCodeMap.put(charCount.keySet().iterator().next(), "0");
+            return charCodeMap;
+        }
 
         // fill queue and allow it to compare the occurrence of each character
         var queue = new PriorityQueue<Node<HuffmanData>>(Comparator.comparingLong(n -> n.getData().count));
@@ -70,11 +188,60 @@ public class Encoder {
         }
 
         // fill a map in the form of (Char -> Binary String)
-        var charCodeMap = new HashMap<Character, String>();
-        this.getCodes(root, "", charCodeMap);
+        if (root != null) {
+            getCodes(root, "", charCodeMap);
+        }
+        return charCodeMap;
+    }
+
+    /**
+     * Builds an order-1 table: every character which precedes other characters often enough gets codes of its own
+     * for the characters following it. A context only gets its own codes if the bits saved compared to the plain
+     * table outweigh the size of its table entry, all other contexts (and the very first character) share the
+     * fallback codes.
+     * @param source Path
+     * @return CodeTable
+     */
+    private CodeTable buildContextTable(Path source) {
+        try {
+            var content = Files.readAllBytes(source);
+            this.initialSize = content.length;
+
+            // count occurrences of each character and of each character per preceding character
+            var charCount = new HashMap<Character, Long>();
+            var contextCount = new HashMap<Character, Map<Character, Long>>();
+            var previous = CodeTable.NO_CONTEXT;
+            for (byte b : content) {
+                var c = (char) (b & 0xFF);
+                charCount.merge(c, 1L, Long::sum);
+                contextCount.computeIfAbsent(previous, k -> new HashMap<>()).merge(c, 1L, Long::sum);
+                previous = c;
+            }
+
+            var plainCodes = buildCodes(charCount);
+            var fallbackCount = new HashMap<Character, Long>();
+            var contexts = new HashMap<Character, Map<Character, String>>();
+            contextCount.forEach((context, counts) -> {
+                var codes = buildCodes(counts);
+                long savedBits = 0;
+                for (var entry : counts.entrySet()) {
+                    var c = entry.getKey();
+                    savedBits += entry.getValue() * (plainCodes.get(c).length() - codes.get(c).length());
+                }
+                // context prefix "CTX=" plus the serialized codes
+                long tableBits = 8L * (6 + CodeTable.serializeCodes(codes).length());
+
+                if (context != CodeTable.NO_CONTEXT && savedBits > tableBits) {
+                    contexts.put(context, codes);
+                    return;
+                }
+                counts.forEach((c, count) -> fallbackCount.merge(c, count, Long::sum));
+            });
 
-        this.writeTable(charCodeMap, this.tableOutput);
-        this.writeData(charCodeMap, this.compressedOutput, this.dataSource);
+            return new CodeTable(buildCodes(fallbackCount), contexts);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
@@ -84,94 +251,115 @@ public class Encoder {
      * @param code initially empty string will contain the huffman code (left = 0, right = 1) as the tree is traversed
      * @param charCodeMap the map to populate
      */
-    private void getCodes(Node<HuffmanData> node, String code, HashMap<Character, String> charCodeMap) {
+    private static void getCodes(Node<HuffmanData> node, String code, HashMap<Character, String> charCodeMap) {
         if (node.getLeft() != null) {
             getCodes(node.getLeft(), code + "0", charCodeMap);
         }
         if (node.getRight() != null) {
             getCodes(node.getRight(), code + "1", charCodeMap);
         }
-        if (node.getData() != null && node.getData().c != 0) {
+        if (node.getLeft() == null && node.getRight() == null) {
             charCodeMap.put(node.getData().c, code);
         }
     }
 
     private Map<Character, Long> read(Path source) {
-        try (var reader = Files.newBufferedReader(source)) {
-            this.initialSize = Files.size(source);
-
-            // read each byte as char
-            var characters = new ArrayList<Character>();
-            int b;
-            while ((b = reader.read()) != -1 ) {
-                characters.add((char) b);
+        try {
+            // :( bad for memory but we don't care about it in this simple example implementation
+            var content = Files.readAllBytes(source);
+            this.initialSize = content.length;
+
+            // count occurrences of each byte and use it as char
+            var counts = new long[256];
+            KERNELS.histogram(content, counts);
+
+            var charCount = new HashMap<Character, Long>();
+            for (int c = 0; c < counts.length; c++) {
+                if (counts[c] > 0) {
+                    charCount.put((char) c, counts[c]);
+                }
             }
+            return charCount;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-            // use groupingBy to conveniently count occurrences of chars
-            return characters.stream()
-                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+    private void writeTable(byte[] table, Path targetTable) {
+        try {
+            Files.write(targetTable, table);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
     }
 
-    private void writeTable(Map<Character, String> charCodeMap, Path targetTable) {
-        try (var writer = Files.newBufferedWriter(targetTable)) {
-            var lastIndex = charCodeMap.entrySet().size() - 1;
-            var idx = 0;
-            for (var entry : charCodeMap.entrySet()) {
-                var sb = new StringBuilder();
-                sb.append((int)entry.getKey());
-                sb.append(":");
-                sb.append(entry.getValue());
-                if (idx < lastIndex) {
-                    sb.append("-");
-                }
-                var toWrite = sb.toString();
-                writer.write(toWrite);
-                idx += 1;
-            }
+    /**
+     * Writes the data file with a single block using the table file, see BlockIndex.
+     * @param tableChecksum the checksum of the table file
+     */
+    private void writeData(CodeTable table, long tableChecksum, Path targetOutput, Path input) {
+        try (var channel = FileChannel.open(
+            targetOutput,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING
+        )) {
+            var data = this.packData(table, Files.readAllBytes(input));
+            this.compressedSize = data.length;
+            BlockIndex.create(channel).appendWithTableFile(channel, tableChecksum, data);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
     }
 
-    private void writeData(Map<Character, String> charCodeMap, Path targetOutput, Path input) {
-        try (
-            var reader = Files.newInputStream(input);
-            var writer = Files.newOutputStream(targetOutput)
-        ) {
-            var bitString = new StringBuilder();
+    /**
+     * Converts each byte of the content using the supplied table and returns the padded result.
+     * @param table CodeTable
+     * @param content byte[]
+     * @return byte[]
+     */
+    private byte[] packData(CodeTable table, byte[] content) throws IOException {
+        var rows = table.isContextual() ? Kernels.CONTEXT_ROWS : 1;
+        var codes = new long[rows * 256];
+        var lengths = new int[rows * 256];
 
-            // encode
-            int b;
-            while ((b = reader.read()) != -1 ) {
-                if (!charCodeMap.containsKey((char)b)) {
-                    throw new IOException("char '" + (char)b + "' not found in char code table");
+        // flatten the table, in contextual mode the previous byte selects the row
+        for (int row = 0; row < rows; row++) {
+            var context = row == Kernels.NO_CONTEXT_ROW ? CodeTable.NO_CONTEXT : (char) row;
+            for (var entry : table.codesFor(context).entrySet()) {
+                var c = entry.getKey();
+                if (c > 0xFF) continue;
+                var code = entry.getValue();
+                if (code.length() > BitPacker.MAX_CODE_LENGTH) {
+                    throw new IOException("code for char '" + c + "' exceeds " + BitPacker.MAX_CODE_LENGTH + " bits");
                 }
-                bitString.append(charCodeMap.get((char) b));
+                codes[row * 256 + c] = Long.parseLong(code, 2);
+                lengths[row * 256 + c] = code.length();
             }
+        }
 
-            // padding
-            var padLength = 8 - (bitString.length() % 8);
-            for (int i = 0; i < padLength; i++) {
-                if (i == 0) {
-                    bitString.append("1");
-                    continue;
-                }
-                bitString.append("0");
-            }
+        return KERNELS.pack(content, codes, lengths, table.isContextual());
+    }
 
-            // write to output
-            var bits = bitString.toString();
-            this.compressedSize = bits.length() / 8;
-            for (int i = 0; i < bits.length(); i += 8) {
-                var temp = Integer.parseInt(bits.substring(i, i + 8) ,2);
-                writer.write((byte) temp);
+    /**
+     * Counts the bits needed to encode the content with the supplied table.
+     * @param table CodeTable
+     * @param content byte[]
+     * @return the number of bits or -1 if the table does not contain a code for every character
+     */
+    private long countBits(CodeTable table, byte[] content) {
+        long bits = 0;
+        var previous = CodeTable.NO_CONTEXT;
+        for (byte b : content) {
+            var c = (char) (b & 0xFF);
+            var code = table.codesFor(previous).get(c);
+            if (code == null) {
+                return -1;
             }
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
+            bits += code.length();
+            previous = c;
         }
+        return bits;
     }
 
     public long getInitialSize() {
@@ -0,0 +1,47 @@
+package ch.fhnw.mada.huffman;
+
+import java.io.IOException;
+
+/**
+ * The per byte loops of the encoder: counting the occurrences of each byte and packing the codes into bytes.
+ * The code arrays are indexed by the byte value, in contextual mode by (previous byte * 256 + byte) where the row
+ * NO_CONTEXT_ROW is used for the very first byte. A length of 0 marks a byte without a code.
+ */
+interface Kernels {
+    int NO_CONTEXT_ROW = 256;
+    int CONTEXT_ROWS = 257;
+
+    void histogram(byte[] data, long[] counts);
+
+    /**
+     * Packs the codes of all bytes in data and appends the padding (a 1 followed by 0s up to the next full byte).
+     * @return the encoded data
+     */
+    byte[] pack(byte[] data, long[] codes, int[] lengths, boolean contextual) throws IOException;
+
+    /**
+     * Property selecting the kernels, the Vector API kernels are only used with -Dhuffman.kernels=vector.
+     */
+    String KERNELS_PROPERTY = "huffman.kernels";
+
+    /**
+     * Uses the scalar kernels unless the Vector API kernels are requested explicitly (see KERNELS_PROPERTY). A single
+     * CLI run does not amortize loading the incubator module and warming up the vector code, encoding is slower
+     * end to end with them (see readme). The Vector API kernels are only used if they were compiled in (maven profile
+     * vector) and the jdk.incubator.vector module is available at runtime.
+     * @return Kernels
+     */
+    static Kernels load() {
+        if (!"vector".equals(System.getProperty(KERNELS_PROPERTY))) {
+            return new ScalarKernels();
+        }
+        try {
+            return (Kernels) Class.forName("ch.fhnw.mada.huffman.VectorKernels").getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException | NoClassDefFoundError e) {
+            // not compiled in or jdk.incubator.vector is not available at runtime
+            return new ScalarKernels();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("could not create the vector kernels", e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package ch.fhnw.mada.huffman;
+
+import java.io.IOException;
+
+class ScalarKernels implements Kernels {
+    /**
+     * Counts into 4 separate histograms, consecutive equal bytes would otherwise stall on the previous increment.
+     */
+    @Override
+    public void histogram(byte[] data, long[] counts) {
+        var h0 = new long[256];
+        var h1 = new long[256];
+        var h2 = new long[256];
+        var h3 = new long[256];
+
+        var i = 0;
+        for (; i + 3 < data.length; i += 4) {
+            h0[data[i] & 0xFF]++;
+            h1[data[i + 1] & 0xFF]++;
+            h2[data[i + 2] & 0xFF]++;
+            h3[data[i + 3] & 0xFF]++;
+        }
+        for (; i < data.length; i++) {
+            h0[data[i] & 0xFF]++;
+        }
+
+        for (int c = 0; c < 256; c++) {
+            counts[c] += h0[c] + h1[c] + h2[c] + h3[c];
+        }
+    }
+
+    @Override
+    public byte[] pack(byte[] data, long[] codes, int[] lengths, boolean contextual) throws IOException {
+        var packer = new BitPacker(data.length, lengths);
+        var context = NO_CONTEXT_ROW;
+        for (byte b : data) {
+            var c = b & 0xFF;
+            var index = contextual ? (context << 8) | c : c;
+            var length = lengths[index];
+            if (length == 0) {
+                throw missingCode(c);
+            }
+            packer.write(codes[index], length);
+            context = c;
+        }
+        return packer.finish();
+    }
+
+    static IOException missingCode(int c) {
+        return new IOException("char '" + (char) c + "' not found in char code table");
+    }
+}
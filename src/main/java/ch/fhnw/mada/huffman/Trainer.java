@@ -0,0 +1,64 @@
+package ch.fhnw.mada.huffman;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+
+/**
+ * sample texts -> dictionary
+ */
+public class Trainer {
+    private static final Kernels KERNELS = Kernels.load();
+
+    private Path sampleSource;
+    private DictionaryRegistry registry;
+
+    private long sampleCount = 0;
+    private long sampleSize = 0;
+
+    public Trainer(Path sampleSource, DictionaryRegistry registry) {
+        this.sampleSource = sampleSource;
+        this.registry = registry;
+    }
+
+    /**
+     * Train will perform the following pipeline:
+     * 1. count the occurrences of each byte over all files in the sampleSource directory
+     * 2. add a single occurrence for each possible byte, so text containing bytes missing in the samples can still
+     *    be encoded using the dictionary
+     * 3. create the huffman codes the same way encode does and store them in the registry using the supplied id,
+     *    which must not be in use yet
+     * @param id the dictionary id
+     */
+    public void train(int id) {
+        var counts = new long[256];
+        try (var files = Files.list(this.sampleSource)) {
+            for (var file : (Iterable<Path>) files::iterator) {
+                if (!Files.isRegularFile(file)) continue;
+                var content = Files.readAllBytes(file);
+                KERNELS.histogram(content, counts);
+                this.sampleCount += 1;
+                this.sampleSize += content.length;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        var charCount = new HashMap<Character, Long>();
+        for (int c = 0; c < counts.length; c++) {
+            charCount.put((char) c, counts[c] + 1);
+        }
+
+        this.registry.store(id, new CodeTable(Encoder.buildCodes(charCount)));
+    }
+
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    public long getSampleSize() {
+        return sampleSize;
+    }
+}
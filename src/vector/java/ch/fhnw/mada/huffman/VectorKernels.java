@@ -0,0 +1,98 @@
+package ch.fhnw.mada.huffman;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.io.IOException;
+
+/**
+ * Vector API variant of the kernels, only compiled using the maven profile vector.
+ * The byte values (and contexts) of a whole vector are widened to table indexes and the codes and lengths are
+ * gathered at once, adjacent codes are then merged pairwise (shift/OR) so only half of the codes reach the scalar
+ * packer. The histogram is inherited as the Vector API has no scatter-add.
+ * 8 bytes are widened to 8 ints (256 bit), hosts without 256 bit vectors use the scalar packing.
+ */
+class VectorKernels extends ScalarKernels {
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_64;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_256;
+    private static final boolean SUPPORTED = IntVector.SPECIES_PREFERRED.vectorBitSize() >= INTS.vectorBitSize();
+    private static final int MAX_GATHER_CODE_LENGTH = 16;
+
+    @Override
+    public byte[] pack(byte[] data, long[] codes, int[] lengths, boolean contextual) throws IOException {
+        if (!SUPPORTED) {
+            return super.pack(data, codes, lengths, contextual);
+        }
+
+        // merged pairs have to fit into an int lane
+        var intCodes = new int[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            if (lengths[i] > MAX_GATHER_CODE_LENGTH) {
+                return super.pack(data, codes, lengths, contextual);
+            }
+            intCodes[i] = (int) codes[i];
+        }
+
+        var packer = new BitPacker(data.length, lengths);
+        var lanes = INTS.length();
+        var indexes = new int[lanes];
+        var pairCodes = new int[lanes];
+        var pairLengths = new int[lanes];
+
+        var i = 0;
+        var upper = contextual ? BYTES.loopBound(data.length - 1) : BYTES.loopBound(data.length);
+        if (contextual && data.length > 0) {
+            // the first byte has no previous byte and is packed on its own
+            packByte(packer, data[0] & 0xFF, NO_CONTEXT_ROW, codes, lengths, true);
+            i = 1;
+            upper += 1;
+        }
+
+        for (; i < upper; i += lanes) {
+            var index = widen(data, i);
+            if (contextual) {
+                index = widen(data, i - 1).lanewise(VectorOperators.LSHL, 8).or(index);
+            }
+            index.intoArray(indexes, 0);
+
+            var length = IntVector.fromArray(INTS, lengths, 0, indexes, 0);
+            if (length.compare(VectorOperators.EQ, 0).anyTrue()) {
+                throw missingCode(data[i + length.compare(VectorOperators.EQ, 0).firstTrue()] & 0xFF);
+            }
+            var code = IntVector.fromArray(INTS, intCodes, 0, indexes, 0);
+
+            // merge each even lane with the following odd lane: (even << oddLength) | odd
+            var odd = code.rearrange(INTS.iotaShuffle(1, 1, true));
+            var oddLength = length.rearrange(INTS.iotaShuffle(1, 1, true));
+            code.lanewise(VectorOperators.LSHL, oddLength).or(odd).intoArray(pairCodes, 0);
+            length.add(oddLength).intoArray(pairLengths, 0);
+
+            for (int k = 0; k < lanes; k += 2) {
+                packer.write(pairCodes[k] & 0xFFFFFFFFL, pairLengths[k]);
+            }
+        }
+
+        for (; i < data.length; i++) {
+            var context = i == 0 ? NO_CONTEXT_ROW : data[i - 1] & 0xFF;
+            packByte(packer, data[i] & 0xFF, context, codes, lengths, contextual);
+        }
+        return packer.finish();
+    }
+
+    private static IntVector widen(byte[] data, int offset) {
+        return ((IntVector) ByteVector.fromArray(BYTES, data, offset)
+            .convertShape(VectorOperators.B2I, INTS, 0))
+            .and(0xFF);
+    }
+
+    private static void packByte(BitPacker packer, int c, int context, long[] codes, int[] lengths, boolean contextual)
+        throws IOException {
+        var index = contextual ? (context << 8) | c : c;
+        if (lengths[index] == 0) {
+            throw missingCode(c);
+        }
+        packer.write(codes[index], lengths[index]);
+    }
+}
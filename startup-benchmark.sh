@@ -0,0 +1,29 @@
+#!/bin/sh
+# Measures the average wall clock time of encoding original.txt with and without the CDS archive.
+# Requires a previous "mvn -P cds package".
+# Usage: ./startup-benchmark.sh [RUNS]
+RUNS=${1:-50}
+JAR=target/huffman-1.0-SNAPSHOT.jar
+JSA=target/huffman.jsa
+ARGS="encode -i original.txt -t target/bench-table.txt -o target/bench-data.dat"
+
+if [ ! -f "$JAR" ] || [ ! -f "$JSA" ]; then
+    echo "$JAR or $JSA missing, run: mvn -P cds package"
+    exit 1
+fi
+
+measure() {
+    name=$1
+    shift
+    start=$(date +%s%N)
+    i=0
+    while [ $i -lt "$RUNS" ]; do
+        "$@" $ARGS > /dev/null
+        i=$((i + 1))
+    done
+    end=$(date +%s%N)
+    echo "$name: $(( (end - start) / RUNS / 1000000 )) ms per run"
+}
+
+measure "jar" java -jar "$JAR"
+measure "jar + cds" java -XX:SharedArchiveFile="$JSA" -jar "$JAR"